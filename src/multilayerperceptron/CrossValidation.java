@@ -0,0 +1,176 @@
+package multilayerperceptron;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *
+ * @author daniel
+ */
+public class CrossValidation {
+    /* Validación cruzada de k particiones. Los renglones del conjunto se
+     * barajan una sola vez y se reparten en k particiones; cada partición se
+     * evalúa con una red entrenada con las k - 1 restantes. Las k redes se
+     * entrenan a la vez, cada una en su propio hilo. Si una partición
+     * falla se interrumpen las demás, que dejan de entrenar en la siguiente
+     * época.
+     *
+     * Las particiones son vistas de índices (Dataset.view) sobre el mismo
+     * conjunto, que nadie modifica, así que la memoria de los patrones no
+     * crece con k: cada partición sólo agrega sus arreglos de índices y su
+     * propia red.
+     *
+     * folds: Número de particiones (k).
+     * threads: Máximo de particiones que se entrenan al mismo tiempo.
+     * seed: Semilla con la que se barajan los renglones.
+     */
+
+    private final int folds;
+    private final int threads;
+    private final long seed;
+
+    public CrossValidation(int folds) {
+        this(folds, Runtime.getRuntime().availableProcessors(), 0L);
+    }
+
+    public CrossValidation(int folds, int threads, long seed) {
+        if (folds < 2) {
+            throw new IllegalArgumentException(
+                    "Se necesitan al menos dos particiones");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Se necesita al menos un hilo de entrenamiento");
+        }
+        this.folds = folds;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    public CrossValidationResult run(final NetworkFactory factory,
+            Dataset dataset, final double maxGlobalError)
+            throws InterruptedException, UnsolvableProblemException {
+        if (dataset.size() < folds) {
+            throw new IllegalArgumentException("No se puede partir un " +
+                    "conjunto de " + dataset.size() + " patrones en " +
+                    folds + " particiones");
+        }
+        long start = System.nanoTime();
+        int[] order = shuffledRows(dataset.size());
+        final Evaluator evaluator = new Evaluator(1);
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(threads, folds), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "cross-validation");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        CompletionService<Fold> completion =
+                new ExecutorCompletionService<>(executor);
+        try {
+            for (int fold = 0; fold < folds; fold++) {
+                final Dataset trainingSet = dataset.view(
+                        trainingRows(order, fold));
+                final Dataset testSet = dataset.view(testRows(order, fold));
+                final int index = fold;
+                completion.submit(new Callable<Fold>() {
+                    @Override
+                    public Fold call() throws Exception {
+                        MultilayerPerceptron network = factory.create();
+                        long trainingStart = System.nanoTime();
+                        network.train(trainingSet, maxGlobalError);
+                        long trainingNanos = System.nanoTime() - trainingStart;
+                        Evaluation evaluation =
+                                evaluator.evaluate(network, testSet);
+                        return new Fold(index, evaluation, trainingNanos);
+                    }
+                });
+            }
+            Evaluation[] evaluations = new Evaluation[folds];
+            long[] trainingNanos = new long[folds];
+            // en el orden en que terminan, para que la primera partición que
+            // falle detenga a las demás sin esperar a las anteriores
+            for (int i = 0; i < folds; i++) {
+                Fold result = completion.take().get();
+                evaluations[result.index] = result.evaluation;
+                trainingNanos[result.index] = result.trainingNanos;
+            }
+            return new CrossValidationResult(evaluations, trainingNanos,
+                    System.nanoTime() - start);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof UnsolvableProblemException) {
+                throw (UnsolvableProblemException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    int[] shuffledRows(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    private int foldStart(int size, int fold) {
+        return (int) ((long) size * fold / folds);
+    }
+
+    int[] testRows(int[] order, int fold) {
+        int from = foldStart(order.length, fold);
+        int to = foldStart(order.length, fold + 1);
+        int[] rows = new int[to - from];
+        System.arraycopy(order, from, rows, 0, rows.length);
+        return rows;
+    }
+
+    int[] trainingRows(int[] order, int fold) {
+        int from = foldStart(order.length, fold);
+        int to = foldStart(order.length, fold + 1);
+        int[] rows = new int[order.length - (to - from)];
+        System.arraycopy(order, 0, rows, 0, from);
+        System.arraycopy(order, to, rows, from, order.length - to);
+        return rows;
+    }
+
+    private static final class Fold {
+        final int index;
+        final Evaluation evaluation;
+        final long trainingNanos;
+
+        Fold(int index, Evaluation evaluation, long trainingNanos) {
+            this.index = index;
+            this.evaluation = evaluation;
+            this.trainingNanos = trainingNanos;
+        }
+    }
+}
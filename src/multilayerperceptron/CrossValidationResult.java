@@ -0,0 +1,115 @@
+package multilayerperceptron;
+
+import static java.lang.Math.sqrt;
+
+/**
+ *
+ * @author daniel
+ */
+public class CrossValidationResult {
+    /* Resultado de una validación cruzada.
+     *
+     * evaluations: Evaluación de cada partición con la red entrenada sin
+     *     ella.
+     * trainingNanos: Tiempo de entrenamiento de cada partición.
+     * elapsedNanos: Tiempo total, de reloj, de toda la validación. Como las
+     *     particiones se entrenan a la vez suele ser menor que la suma de
+     *     los tiempos de cada una.
+     */
+
+    final Evaluation[] evaluations;
+    final long[] trainingNanos;
+    final long elapsedNanos;
+
+    CrossValidationResult(Evaluation[] evaluations, long[] trainingNanos,
+            long elapsedNanos) {
+        this.evaluations = evaluations;
+        this.trainingNanos = trainingNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getFolds() {
+        return evaluations.length;
+    }
+
+    public Evaluation getEvaluation(int fold) {
+        return evaluations[fold];
+    }
+
+    public long getTrainingNanos(int fold) {
+        return trainingNanos[fold];
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getMeanAccuracy() {
+        double sum = 0.0;
+        for (Evaluation evaluation : evaluations) {
+            sum += evaluation.getAccuracy();
+        }
+        return sum / (double) evaluations.length;
+    }
+
+    public double getAccuracyDeviation() {
+        double mean = getMeanAccuracy();
+        double sum = 0.0;
+        for (Evaluation evaluation : evaluations) {
+            double difference = evaluation.getAccuracy() - mean;
+            sum += difference * difference;
+        }
+        return sqrt(sum / (double) evaluations.length);
+    }
+
+    public double getMeanGlobalError() {
+        double sum = 0.0;
+        for (Evaluation evaluation : evaluations) {
+            sum += evaluation.getGlobalError();
+        }
+        return sum / (double) evaluations.length;
+    }
+
+    public long[][] getConfusionMatrix() {
+        /* Suma de las matrices de confusión de todas las particiones. Todas
+         * tienen las mismas clases porque salen del mismo conjunto.
+         */
+        int classes = evaluations[0].confusionMatrix.length;
+        long[][] rtrn = new long[classes][classes];
+        for (Evaluation evaluation : evaluations) {
+            for (int i = 0; i < classes; i++) {
+                for (int j = 0; j < classes; j++) {
+                    rtrn[i][j] += evaluation.confusionMatrix[i][j];
+                }
+            }
+        }
+        return rtrn;
+    }
+
+    public long getTotalTrainingNanos() {
+        long total = 0;
+        for (long nanos : trainingNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < evaluations.length; i++) {
+            sb.append("Partición ").append(i)
+                    .append(": exactitud ").append(evaluations[i].getAccuracy())
+                    .append(", error global ")
+                    .append(evaluations[i].getGlobalError())
+                    .append(", entrenamiento ")
+                    .append(trainingNanos[i] / 1000000.0).append(" ms\n");
+        }
+        sb.append("Exactitud media: ").append(getMeanAccuracy())
+                .append(" (desviación ").append(getAccuracyDeviation())
+                .append("), error global medio: ").append(getMeanGlobalError())
+                .append(", tiempo total: ").append(elapsedNanos / 1000000.0)
+                .append(" ms\n");
+        return sb.toString();
+    }
+}
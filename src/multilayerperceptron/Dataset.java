@@ -0,0 +1,117 @@
+package multilayerperceptron;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ *
+ * @author daniel
+ */
+public class Dataset {
+    /* Conjunto de patrones y decisiones en arreglos primitivos, de sólo
+     * lectura una vez construido. Es la forma en que se recorre una base de
+     * conocimientos al evaluar la red sin convertir cada valor de Double.
+     *
+     * patterns: Patrones de entrada, uno por renglón.
+     * decisions: Decisiones esperadas, una por renglón, en el mismo orden
+     *     que patterns.
+     * labels: Valores distintos, ordenados, de la primera salida en todas
+     *     las decisiones. Son las clases con las que se arma la matriz de
+     *     confusión de una red con una sola salida.
+     * indices: Renglones de patterns y decisions que forman parte de este
+     *     conjunto, en orden. null si son todos. Las vistas creadas con
+     *     view comparten los arreglos del conjunto original y sólo guardan
+     *     sus índices, así que partir un conjunto no copia ningún patrón.
+     */
+
+    final double[][] patterns;
+    final double[][] decisions;
+    final double[] labels;
+    final int[] indices;
+
+    public Dataset(double[][] patterns, double[][] decisions) {
+        if (patterns.length != decisions.length) {
+            throw new IllegalArgumentException("Hay " + patterns.length +
+                    " patrones y " + decisions.length + " decisiones");
+        }
+        this.patterns = patterns;
+        this.decisions = decisions;
+        this.labels = distinctLabels(decisions);
+        this.indices = null;
+    }
+
+    private Dataset(Dataset dataset, int[] indices) {
+        this.patterns = dataset.patterns;
+        this.decisions = dataset.decisions;
+        this.labels = dataset.labels;
+        this.indices = indices;
+    }
+
+    public static Dataset fromKnowledgeBase(
+            Map<Double[], Double[]> knowledgeBase) {
+        double[][] patterns = new double[knowledgeBase.size()][];
+        double[][] decisions = new double[knowledgeBase.size()][];
+        int i = 0;
+        for (Map.Entry<Double[], Double[]> entry : knowledgeBase.entrySet()) {
+            patterns[i] = unbox(entry.getKey());
+            decisions[i] = unbox(entry.getValue());
+            i++;
+        }
+        return new Dataset(patterns, decisions);
+    }
+
+    public Dataset view(int[] rows) {
+        /* rows son posiciones dentro de este conjunto, no del original. */
+        int[] viewIndices = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] < 0 || rows[i] >= size()) {
+                throw new IndexOutOfBoundsException("Renglón " + rows[i] +
+                        " fuera de un conjunto de " + size());
+            }
+            viewIndices[i] = indices == null ? rows[i] : indices[rows[i]];
+        }
+        return new Dataset(this, viewIndices);
+    }
+
+    public int size() {
+        return indices == null ? patterns.length : indices.length;
+    }
+
+    public double[] getPattern(int i) {
+        return patterns[indices == null ? i : indices[i]];
+    }
+
+    public double[] getDecision(int i) {
+        return decisions[indices == null ? i : indices[i]];
+    }
+
+    public double[] getLabels() {
+        return labels.clone();
+    }
+
+    private static double[] unbox(Double[] values) {
+        double[] rtrn = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            rtrn[i] = values[i];
+        }
+        return rtrn;
+    }
+
+    private static double[] distinctLabels(double[][] decisions) {
+        double[] values = new double[decisions.length];
+        int count = 0;
+        for (double[] decision : decisions) {
+            if (decision.length > 0) {
+                values[count++] = decision[0];
+            }
+        }
+        Arrays.sort(values, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+}
@@ -0,0 +1,100 @@
+package multilayerperceptron;
+
+/**
+ *
+ * @author daniel
+ */
+public class Evaluation {
+    /* Resultado de evaluar una red sobre un conjunto de datos.
+     *
+     * size: Número de patrones evaluados.
+     * squaredMeanErrors: Error cuadrático medio de cada neurona de salida.
+     * correct: Patrones en los que todas las salidas quedaron dentro del
+     *     umbral de la red.
+     * labels: Clases de la matriz de confusión. Para una red con una sola
+     *     salida son los valores de decisión del conjunto; con varias salidas
+     *     son los índices de las neuronas de salida. Vacío, igual que la
+     *     matriz, cuando hay más de Evaluator.MAX_LABELS valores distintos.
+     * confusionMatrix: confusionMatrix[esperada][obtenida] cuenta los
+     *     patrones de la clase esperada que la red asignó a la obtenida.
+     * elapsedNanos: Tiempo total de la evaluación.
+     */
+
+    final int size;
+    final double[] squaredMeanErrors;
+    final long correct;
+    final double[] labels;
+    final long[][] confusionMatrix;
+    final long elapsedNanos;
+
+    Evaluation(int size, double[] squaredMeanErrors, long correct,
+            double[] labels, long[][] confusionMatrix, long elapsedNanos) {
+        this.size = size;
+        this.squaredMeanErrors = squaredMeanErrors;
+        this.correct = correct;
+        this.labels = labels;
+        this.confusionMatrix = confusionMatrix;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double[] getSquaredMeanErrors() {
+        return squaredMeanErrors.clone();
+    }
+
+    public double getGlobalError() {
+        if (squaredMeanErrors.length == 0) {
+            return 0.0;
+        }
+        double globalError = 0.0;
+        for (double squaredMeanError : squaredMeanErrors) {
+            globalError += squaredMeanError;
+        }
+        return globalError / (double) squaredMeanErrors.length;
+    }
+
+    public long getCorrect() {
+        return correct;
+    }
+
+    public double getAccuracy() {
+        return size == 0 ? 0.0 : (double) correct / (double) size;
+    }
+
+    public double[] getLabels() {
+        return labels.clone();
+    }
+
+    public long[][] getConfusionMatrix() {
+        long[][] rtrn = new long[confusionMatrix.length][];
+        for (int i = 0; i < confusionMatrix.length; i++) {
+            rtrn[i] = confusionMatrix[i].clone();
+        }
+        return rtrn;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Patrones: ").append(size)
+                .append(", exactitud: ").append(getAccuracy())
+                .append(", error global: ").append(getGlobalError())
+                .append(", tiempo: ").append(elapsedNanos / 1000000.0)
+                .append(" ms\n");
+        for (int i = 0; i < confusionMatrix.length; i++) {
+            sb.append(labels[i]).append(':');
+            for (long count : confusionMatrix[i]) {
+                sb.append(' ').append(count);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,210 @@
+package multilayerperceptron;
+
+import static java.lang.Math.abs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *
+ * @author daniel
+ */
+public class Evaluator {
+    /* Evalúa una red entrenada sobre un conjunto de datos completo. El
+     * conjunto se parte en bloques contiguos que se evalúan en paralelo con
+     * MultilayerPerceptron.forward, que no modifica el estado de la red ni
+     * pasa por su caché de predicciones, para que evaluar en cada época no
+     * desaloje las entradas de producción ni altere sus métricas. Cada
+     * bloque acumula sus propios conteos y al final se suman, así que los
+     * hilos no comparten nada mientras trabajan.
+     *
+     * threads: Número de hilos de evaluación.
+     * executor: Hilos que evalúan los bloques. null cuando sólo hay un hilo,
+     *     en cuyo caso se evalúa en el hilo que llama.
+     * MIN_CHUNK: Tamaño mínimo de un bloque; con menos patrones no vale la
+     *     pena repartir el trabajo.
+     * MAX_LABELS: Máximo de clases para construir la matriz de confusión.
+     *     Una red de una sola salida con más valores de decisión distintos
+     *     se trata como regresión: cada bloque reservaría una matriz de
+     *     clases por clases, así que sólo se calculan el error y la
+     *     exactitud.
+     */
+
+    static final int MIN_CHUNK = 64;
+    static final int MAX_LABELS = 256;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    public Evaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public Evaluator(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Se necesita al menos un hilo de evaluación");
+        }
+        this.threads = threads;
+        this.executor = threads > 1 ?
+                Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "evaluator");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }) : null;
+    }
+
+    public Evaluation evaluate(final MultilayerPerceptron network,
+            final Dataset dataset) throws InterruptedException {
+        network.checkDimensions(dataset);
+        long start = System.nanoTime();
+        final double[] labels = labelsFor(network, dataset);
+        int size = dataset.size();
+        int chunks = executor == null ? 1 :
+                Math.min(threads * 4, (size + MIN_CHUNK - 1) / MIN_CHUNK);
+        Partial total;
+        if (chunks <= 1) {
+            total = evaluateRange(network, dataset, labels, 0, size);
+        } else {
+            List<Future<Partial>> futures = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                final int from = (int) ((long) size * i / chunks);
+                final int to = (int) ((long) size * (i + 1) / chunks);
+                futures.add(executor.submit(new Callable<Partial>() {
+                    @Override
+                    public Partial call() {
+                        return evaluateRange(network, dataset, labels, from,
+                                to);
+                    }
+                }));
+            }
+            total = new Partial(network.outputs.length, labels.length);
+            try {
+                for (Future<Partial> future : futures) {
+                    total.merge(future.get());
+                }
+            } catch (ExecutionException ex) {
+                throw rethrow(ex.getCause());
+            } finally {
+                for (Future<Partial> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        double[] squaredMeanErrors = total.squaredErrors;
+        for (int i = 0; i < squaredMeanErrors.length; i++) {
+            squaredMeanErrors[i] = size == 0 ? 0.0 :
+                    squaredMeanErrors[i] / (double) size;
+        }
+        return new Evaluation(size, squaredMeanErrors, total.correct, labels,
+                total.confusionMatrix, System.nanoTime() - start);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    static Partial evaluateRange(MultilayerPerceptron network,
+            Dataset dataset, double[] labels, int from, int to) {
+        Partial partial = new Partial(network.outputs.length, labels.length);
+        double threshold = network.threshold;
+        for (int i = from; i < to; i++) {
+            double[] prediction = network.forward(dataset.getPattern(i));
+            double[] decision = dataset.getDecision(i);
+            boolean allOutputsOk = true;
+            for (int j = 0; j < prediction.length; j++) {
+                double difference = prediction[j] - decision[j];
+                partial.squaredErrors[j] += difference * difference;
+                if (!(abs(difference) < threshold)) {
+                    allOutputsOk = false;
+                }
+            }
+            if (allOutputsOk) {
+                partial.correct++;
+            }
+            if (labels.length > 0) {
+                partial.confusionMatrix[classOf(decision, labels)]
+                        [classOf(prediction, labels)]++;
+            }
+        }
+        return partial;
+    }
+
+    private static double[] labelsFor(MultilayerPerceptron network,
+            Dataset dataset) {
+        if (network.outputs.length == 1) {
+            return dataset.labels.length <= MAX_LABELS ? dataset.labels :
+                    new double[0];
+        }
+        double[] labels = new double[network.outputs.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = i;
+        }
+        return labels;
+    }
+
+    private static int classOf(double[] values, double[] labels) {
+        /* Con una sola salida la clase es la etiqueta más cercana al valor;
+         * con varias, la neurona de salida con el valor más alto.
+         */
+        int rtrn = 0;
+        if (values.length == 1) {
+            for (int i = 1; i < labels.length; i++) {
+                if (abs(values[0] - labels[i]) <
+                        abs(values[0] - labels[rtrn])) {
+                    rtrn = i;
+                }
+            }
+        } else {
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] > values[rtrn]) {
+                    rtrn = i;
+                }
+            }
+        }
+        return rtrn;
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    static final class Partial {
+        final double[] squaredErrors;
+        final long[][] confusionMatrix;
+        long correct;
+
+        Partial(int outputs, int classes) {
+            squaredErrors = new double[outputs];
+            confusionMatrix = new long[classes][classes];
+        }
+
+        void merge(Partial other) {
+            for (int i = 0; i < squaredErrors.length; i++) {
+                squaredErrors[i] += other.squaredErrors[i];
+            }
+            for (int i = 0; i < confusionMatrix.length; i++) {
+                for (int j = 0; j < confusionMatrix[i].length; j++) {
+                    confusionMatrix[i][j] += other.confusionMatrix[i][j];
+                }
+            }
+            correct += other.correct;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package multilayerperceptron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author daniel
+ */
+public class MicroBatcher {
+    /* Agrupa predicciones individuales que llegan al mismo tiempo desde
+     * varios hilos en lotes pequeños, que se propagan juntos con
+     * MultilayerPerceptron.predict(double[][]).
+     *
+     * Un hilo trabajador toma la primera petición de la cola y todas las que
+     * ya estén esperando. Si con eso no se llena el lote y hay carga (este
+     * lote o el anterior tuvieron más de una petición), espera más
+     * peticiones hasta maxWaitNanos contados desde que llegó la primera. Con
+     * poca carga no espera nada, para que una petición aislada no pague la
+     * espera.
+     *
+     * network: Red con la que se predice.
+     * maxBatchSize: Máximo de peticiones por lote.
+     * maxWaitNanos: Máximo que puede esperar la primera petición de un lote
+     *     a que se junten más.
+     * queue: Peticiones pendientes.
+     * metrics: Latencia, desde que se encola hasta que se resuelve, y
+     *     rendimiento de las peticiones.
+     */
+
+    static final long STOP_CHECK_MILLIS = 100;
+
+    private final MultilayerPerceptron network;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ServingMetrics metrics = new ServingMetrics();
+    private final Thread worker;
+    private volatile boolean running;
+
+    public MicroBatcher(MultilayerPerceptron network, int maxBatchSize,
+            long maxWait, TimeUnit unit) {
+        if (maxBatchSize <= 0 || maxWait < 0) {
+            throw new IllegalArgumentException("El tamaño del lote debe ser " +
+                    "positivo y la espera no puede ser negativa");
+        }
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "micro-batcher");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        metrics.start();
+        running = true;
+        worker.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    public ServingMetrics getMetrics() {
+        return metrics;
+    }
+
+    public double[] predict(double[] pattern) throws InterruptedException {
+        if (pattern.length != network.inputs.length) {
+            throw new IllegalArgumentException("Se esperaban " +
+                    network.inputs.length + " valores de entrada y se " +
+                    "recibieron " + pattern.length);
+        }
+        if (!running) {
+            throw new IllegalStateException("El agrupador no está activo");
+        }
+        Request request = new Request(pattern);
+        queue.add(request);
+        while (!request.done.await(STOP_CHECK_MILLIS,
+                TimeUnit.MILLISECONDS)) {
+            // si el trabajador ya terminó nadie va a resolver la petición
+            if (!worker.isAlive() && queue.remove(request)) {
+                request.fail(new IllegalStateException(
+                        "El agrupador se detuvo"));
+            }
+        }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        return request.prediction;
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        int lastBatchSize = 0;
+        try {
+            while (running) {
+                Request first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                if (batch.size() < maxBatchSize &&
+                        (batch.size() > 1 || lastBatchSize > 1)) {
+                    long deadline = first.enqueued + maxWaitNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        Request next = queue.poll(remaining,
+                                TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                    }
+                }
+                process(batch);
+                lastBatchSize = batch.size();
+                batch.clear();
+            }
+        } catch (InterruptedException ie) {
+            // se detuvo el agrupador
+        } finally {
+            queue.drainTo(batch);
+            RuntimeException failure =
+                    new IllegalStateException("El agrupador se detuvo");
+            for (Request request : batch) {
+                request.fail(failure);
+            }
+        }
+    }
+
+    private void process(List<Request> batch) {
+        double[][] patterns = new double[batch.size()][];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = batch.get(i).pattern;
+        }
+        try {
+            double[][] predictions = network.predict(patterns);
+            long[] latencies = new long[patterns.length];
+            long now = System.nanoTime();
+            for (int i = 0; i < patterns.length; i++) {
+                latencies[i] = now - batch.get(i).enqueued;
+            }
+            // se registra antes de despertar a quien espera para que las
+            // métricas ya incluyan su petición cuando reciba la respuesta
+            metrics.record(latencies);
+            for (int i = 0; i < patterns.length; i++) {
+                Request request = batch.get(i);
+                request.prediction = predictions[i];
+                request.done.countDown();
+            }
+        } catch (RuntimeException re) {
+            for (Request request : batch) {
+                request.fail(re);
+            }
+        }
+    }
+
+    private static final class Request {
+        final double[] pattern;
+        final long enqueued = System.nanoTime();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile double[] prediction;
+        volatile RuntimeException failure;
+
+        Request(double[] pattern) {
+            this.pattern = pattern;
+        }
+
+        void fail(RuntimeException failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,8 +27,18 @@ public class MultilayerPerceptron {
      *     backpropagation.
      * maxGlobalError: Máximo error cuadrático medio global aceptado como
      *     solución.
+     * maxEpochs: Máximo de épocas de entrenamiento antes de declarar que el
+     *     problema no se puede resolver con el error pedido.
      * knowledgeBase: Base de conocimientos empleada para crear la red. Consiste
      *     en mapeos patrón -> decisión.
+     * weightsVersion: Versión de los pesos. Cada neurona la aumenta al
+     *     modificar sus pesos, lo que invalida las predicciones guardadas en
+     *     caché.
+     * predictionCache: Caché opcional de predicciones. null si no se usa.
+     *     Una caché sólo puede pertenecer a una red.
+     * normalizer: Normalización que se aplica a los patrones antes de
+     *     entrar a la red. null si se usan tal cual o si ya se absorbió en
+     *     los pesos de la primera capa escondida.
      */
 
     InputNeuron[] inputs;
@@ -34,7 +46,25 @@ public class MultilayerPerceptron {
     OutputNeuron[] outputs;
     double threshold;
     Double learningRate;
+    int maxEpochs = DEFAULT_MAX_EPOCHS;
     Map<Double[], Double[]> knowledgeBase;
+    final AtomicLong weightsVersion = new AtomicLong();
+    volatile PredictionCache predictionCache;
+    volatile Normalizer normalizer;
+
+    static final int DEFAULT_MAX_EPOCHS = 10000;
+
+    public int getMaxEpochs() {
+        return maxEpochs;
+    }
+
+    public void setMaxEpochs(int maxEpochs) {
+        if (maxEpochs <= 0) {
+            throw new IllegalArgumentException(
+                    "Se necesita al menos una época de entrenamiento");
+        }
+        this.maxEpochs = maxEpochs;
+    }
 
     public Map<Double[], Double[]> getKnowledgeBase() {
         return knowledgeBase;
@@ -44,88 +74,348 @@ public class MultilayerPerceptron {
         this.knowledgeBase = knowledgeBase;
     }
 
+    public PredictionCache getPredictionCache() {
+        return predictionCache;
+    }
+
+    public void setPredictionCache(PredictionCache predictionCache) {
+        if (predictionCache != null && !predictionCache.bind(this)) {
+            throw new IllegalArgumentException(
+                    "La caché de predicciones ya pertenece a otra red");
+        }
+        this.predictionCache = predictionCache;
+    }
+
+    public Normalizer getNormalizer() {
+        return normalizer;
+    }
+
+    public void setNormalizer(Normalizer normalizer) {
+        if (normalizer != null && normalizer.getFeatures() != inputs.length) {
+            throw new IllegalArgumentException("El normalizador es para " +
+                    normalizer.getFeatures() + " entradas y la red tiene " +
+                    inputs.length);
+        }
+        this.normalizer = normalizer;
+        weightsVersion.incrementAndGet();
+    }
+
+    public void foldNormalizer() {
+        /* Absorbe la normalización en los pesos y el bias de la primera
+         * capa escondida, para que la red entrenada pueda usarse con
+         * patrones sin normalizar y sin ningún paso adicional. Se llama al
+         * terminar el entrenamiento, antes de exportar o servir la red.
+         */
+        Normalizer folded = normalizer;
+        if (folded == null) {
+            return;
+        }
+        NonInputNeuron[] firstLayer = hiddenLayers.length > 0 ?
+                hiddenLayers[0] : outputs;
+        for (NonInputNeuron neuron : firstLayer) {
+            neuron.fold(folded.scales, folded.offsets);
+        }
+        normalizer = null;
+        weightsVersion.incrementAndGet();
+    }
+
     public MultilayerPerceptron(int inputs, int hiddenLayers, int neuronsPerLayer,
             int outputs, double threshold, double learningRate,
             Map<Double[], Double[]> knowledgeBase) {
-        this.inputs = new InputNeuron[inputs];
-        for (int i = 0; i < inputs; i++) {
+        this(uniformWidths(inputs, hiddenLayers, neuronsPerLayer, outputs),
+                threshold, learningRate, knowledgeBase, new Random().nextLong());
+    }
+
+    MultilayerPerceptron(int[] widths, double threshold, double learningRate,
+            Map<Double[], Double[]> knowledgeBase, long seed) {
+        /* widths: Número de neuronas de cada capa, de la de entrada a la de
+         *     salida. Las de en medio son las capas escondidas.
+         * seed: Semilla de los pesos iniciales. La misma semilla da los
+         *     mismos pesos.
+         */
+        if (widths.length < 2) {
+            throw new IllegalArgumentException("La red necesita al menos " +
+                    "una capa de entrada y una de salida");
+        }
+        for (int width : widths) {
+            if (width <= 0) {
+                throw new IllegalArgumentException(
+                        "Todas las capas deben tener al menos una neurona");
+            }
+        }
+        this.inputs = new InputNeuron[widths[0]];
+        for (int i = 0; i < this.inputs.length; i++) {
             this.inputs[i] = new InputNeuron();
         }
-        this.hiddenLayers = new HiddenNeuron[hiddenLayers][neuronsPerLayer];
-        for (int i = 1; i < hiddenLayers; i++) {
-            for (int j = 0; j < neuronsPerLayer; j++) {
+        this.hiddenLayers = new HiddenNeuron[widths.length - 2][];
+        for (int i = 0; i < this.hiddenLayers.length; i++) {
+            this.hiddenLayers[i] = new HiddenNeuron[widths[i + 1]];
+            for (int j = 0; j < this.hiddenLayers[i].length; j++) {
                 this.hiddenLayers[i][j] = new HiddenNeuron();
             }
         }
-        this.outputs = new OutputNeuron[outputs];
-        for (int i = 0; i < outputs; i++) {
+        this.outputs = new OutputNeuron[widths[widths.length - 1]];
+        for (int i = 0; i < this.outputs.length; i++) {
             this.outputs[i] = new OutputNeuron();
         }
-        for (HiddenNeuron hidden : this.hiddenLayers[0]) {
-            for (InputNeuron input : this.inputs) {
-                input.link(hidden);
+        Neuron[] previousLayer = this.inputs;
+        long state = seed;
+        for (HiddenNeuron[] layer : this.hiddenLayers) {
+            state = wire(previousLayer, layer, state);
+            previousLayer = layer;
+        }
+        wire(previousLayer, this.outputs, state);
+        this.threshold = threshold;
+        this.learningRate = learningRate;
+        this.knowledgeBase = knowledgeBase;
+    }
+
+    private static int[] uniformWidths(int inputs, int hiddenLayers,
+            int neuronsPerLayer, int outputs) {
+        if (hiddenLayers < 0) {
+            throw new IllegalArgumentException(
+                    "El número de capas escondidas no puede ser negativo");
+        }
+        int[] widths = new int[hiddenLayers + 2];
+        widths[0] = inputs;
+        for (int i = 1; i <= hiddenLayers; i++) {
+            widths[i] = neuronsPerLayer;
+        }
+        widths[hiddenLayers + 1] = outputs;
+        return widths;
+    }
+
+    private long wire(Neuron[] previousLayer, NonInputNeuron[] layer,
+            long state) {
+        /* Enlaza todas las neuronas de previousLayer con todas las de layer
+         * reservando los pesos de la capa en un solo bloque, en lugar de un
+         * objeto por enlace. Los pesos empiezan al azar en
+         * (-1/sqrt(n), 1/sqrt(n)), con n las neuronas de previousLayer, para
+         * que las neuronas de una capa no aprendan todas lo mismo.
+         *
+         * Los números salen de un splitmix64 en línea sobre state y no de
+         * java.util.Random, que hace una operación atómica por número y con
+         * millones de pesos dominaba el tiempo de construcción. Regresa el
+         * estado para que la siguiente capa continúe la secuencia.
+         */
+        long size = (long) layer.length * (long) previousLayer.length;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Una capa de " + layer.length +
+                    " neuronas sobre otra de " + previousLayer.length +
+                    " tiene demasiados pesos");
+        }
+        double[] weights = new double[(int) size];
+        double range = 1.0 / Math.sqrt(previousLayer.length);
+        for (int i = 0; i < weights.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z ^= z >>> 31;
+            // los 53 bits altos dan un double uniforme en [0, 1)
+            weights[i] = (2.0 * ((z >>> 11) * 0x1.0p-53) - 1.0) * range;
+        }
+        for (int j = 0; j < layer.length; j++) {
+            layer[j].connect(previousLayer, weights,
+                    j * previousLayer.length, weightsVersion);
+        }
+        if (previousLayer instanceof HiddenNeuron[]) {
+            for (int i = 0; i < previousLayer.length; i++) {
+                ((HiddenNeuron) previousLayer[i]).connectNext(layer, i);
             }
         }
-        for (int i = 1; i < hiddenLayers; i++) {
-            for (int j = 0; j < neuronsPerLayer; j++) {
-                for (HiddenNeuron hidden : this.hiddenLayers[i-1]) {
-                    hidden.link(this.hiddenLayers[i][j]);
+        return state;
+    }
+
+    public double[] predict(double[] pattern) {
+        if (pattern.length != inputs.length) {
+            throw new IllegalArgumentException("Se esperaban " +
+                    inputs.length + " valores de entrada y se recibieron " +
+                    pattern.length);
+        }
+        PredictionCache cache = predictionCache;
+        if (cache == null) {
+            return forward(pattern);
+        }
+        long version = weightsVersion.get();
+        double[] prediction = cache.get(pattern, version);
+        if (prediction == null) {
+            prediction = forward(pattern);
+            cache.put(pattern, prediction, version);
+        }
+        return prediction;
+    }
+
+    public double[][] predict(double[][] patterns) {
+        /* Predice varios patrones con una sola propagación por lotes. Sólo
+         * se propagan los patrones que no estén en la caché.
+         */
+        PredictionCache cache = predictionCache;
+        long version = weightsVersion.get();
+        double[][] predictions = new double[patterns.length][];
+        int[] misses = new int[patterns.length];
+        int missCount = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].length != inputs.length) {
+                throw new IllegalArgumentException("Se esperaban " +
+                        inputs.length + " valores de entrada y se " +
+                        "recibieron " + patterns[i].length);
+            }
+            if (cache != null) {
+                predictions[i] = cache.get(patterns[i], version);
+            }
+            if (predictions[i] == null) {
+                misses[missCount++] = i;
+            }
+        }
+        if (missCount > 0) {
+            double[][] batch = new double[missCount][];
+            for (int i = 0; i < missCount; i++) {
+                batch[i] = patterns[misses[i]];
+            }
+            double[][] computed = forward(batch);
+            for (int i = 0; i < missCount; i++) {
+                predictions[misses[i]] = computed[i];
+                if (cache != null) {
+                    cache.put(batch[i], computed[i], version);
                 }
             }
         }
-        for (HiddenNeuron hidden : this.hiddenLayers[hiddenLayers-1]) {
-            for (OutputNeuron output : this.outputs) {
-                hidden.link(output);
+        return predictions;
+    }
+
+    void checkDimensions(Dataset dataset) {
+        /* Revisa que cada patrón y cada decisión del conjunto tengan el
+         * tamaño de las capas de entrada y de salida de la red.
+         */
+        for (int k = 0; k < dataset.size(); k++) {
+            if (dataset.getPattern(k).length != inputs.length) {
+                throw new IllegalArgumentException("El patrón " + k +
+                        " tiene " + dataset.getPattern(k).length +
+                        " valores y la red " + inputs.length + " entradas");
+            }
+            if (dataset.getDecision(k).length != outputs.length) {
+                throw new IllegalArgumentException("La decisión " + k +
+                        " tiene " + dataset.getDecision(k).length +
+                        " valores y la red " + outputs.length + " salidas");
             }
         }
-        this.threshold = threshold;
-        this.learningRate = learningRate;
-        this.knowledgeBase = knowledgeBase;
+    }
+
+    protected double[] forward(double[] pattern) {
+        /* Propagación hacia adelante que no modifica el estado de las
+         * neuronas: los valores de cada capa viven sólo en arreglos locales,
+         * por lo que varios hilos pueden predecir a la vez.
+         */
+        Normalizer current = normalizer;
+        double[] previousValues = current == null ? pattern :
+                current.apply(pattern);
+        for (HiddenNeuron[] layer : hiddenLayers) {
+            previousValues = forwardLayer(previousValues, layer);
+        }
+        return forwardLayer(previousValues, outputs);
+    }
+
+    private static double[] forwardLayer(double[] previousValues,
+            NonInputNeuron[] layer) {
+        double[] values = new double[layer.length];
+        for (int i = 0; i < layer.length; i++) {
+            values[i] = NonInputNeuron.sigma(layer[i].net(previousValues));
+        }
+        return values;
+    }
+
+    protected double[][] forward(double[][] patterns) {
+        Normalizer current = normalizer;
+        double[][] previousValues = patterns;
+        if (current != null) {
+            previousValues = new double[patterns.length][];
+            for (int b = 0; b < patterns.length; b++) {
+                previousValues[b] = current.apply(patterns[b]);
+            }
+        }
+        for (HiddenNeuron[] layer : hiddenLayers) {
+            previousValues = forwardLayer(previousValues, layer);
+        }
+        return forwardLayer(previousValues, outputs);
+    }
+
+    private static double[][] forwardLayer(double[][] previousValues,
+            NonInputNeuron[] layer) {
+        /* El renglón de pesos de cada neurona se recorre para todo el lote
+         * mientras sigue en caché.
+         */
+        double[][] values = new double[previousValues.length][layer.length];
+        for (int j = 0; j < layer.length; j++) {
+            for (int b = 0; b < previousValues.length; b++) {
+                values[b][j] = NonInputNeuron.sigma(
+                        layer[j].net(previousValues[b]));
+            }
+        }
+        return values;
+    }
+
+    public void updateWeights() {
+        for (HiddenNeuron[] layer : hiddenLayers) {
+            for (HiddenNeuron hidden : layer) {
+                hidden.updateWeights();
+            }
+        }
+        for (OutputNeuron output : outputs) {
+            output.updateWeights();
+        }
     }
 
     protected double iterate() throws UnexpectedActionException {
+        return iterate(Dataset.fromKnowledgeBase(knowledgeBase));
+    }
+
+    protected double iterate(Dataset trainingSet)
+            throws UnexpectedActionException {
+        /* Una época de entrenamiento: propaga cada patrón, acumula su error
+         * cuadrático en cada salida y corrige los pesos con
+         * backpropagation antes de pasar al siguiente patrón. Regresa el
+         * error cuadrático medio global de la época.
+         */
         double[] squaredMeanErrors = new double[outputs.length];
-        for (double squaredMeanError : squaredMeanErrors) {
-            squaredMeanError = 0.0;
-        }
-        for (Double[] inputValue : knowledgeBase.keySet()) {
+        Normalizer current = normalizer;
+        for (int k = 0; k < trainingSet.size(); k++) {
+            double[] inputValue = trainingSet.getPattern(k);
+            double[] decision = trainingSet.getDecision(k);
             for (int i = 0; i < inputs.length; i++) {
-                inputs[i].setValue((double) inputValue[i]);
+                inputs[i].setValue(current == null ? inputValue[i] :
+                        current.apply(i, inputValue[i]));
             }
             for (int i = 0; i < hiddenLayers.length; i++) {
                 for (int j = 0; j < hiddenLayers[i].length; j++) {
                     hiddenLayers[i][j].calculateValue();
                 }
             }
-            boolean allOutputsOk;
-            for (OutputNeuron output : outputs) {
-                output.calculateValue();
-                allOutputsOk = output.evaluate(threshold);
+            for (int i = 0; i < outputs.length; i++) {
+                outputs[i].expectedValue = decision[i];
+                outputs[i].calculateValue();
+                double difference = decision[i] - outputs[i].value;
+                squaredMeanErrors[i] += difference * difference;
             }
+            backpropagation();
+            updateWeights();
         }
         double globalError = 0.0;
         for (double squaredMeanError : squaredMeanErrors) {
-            globalError += squaredMeanError;
+            globalError += squaredMeanError / (double) trainingSet.size();
         }
         return globalError / (double) squaredMeanErrors.length;
     }
 
     protected void backpropagation() {
+        /* El error de cada capa depende del de la siguiente, así que se
+         * calcula de la salida hacia la entrada, antes de cambiar pesos.
+         */
         for (OutputNeuron output : outputs) {
             output.calculateError();
             output.calculateWeightsError(learningRate);
         }
-        for (int i = hiddenLayers.length; i > 0; i++) {
-            for (HiddenNeuron hidden : hiddenLayers[i]) {
-                hidden.calculateError();
-                hidden.calculateWeightsError(learningRate);
-            }
-        }
-        for (OutputNeuron output : outputs) {
-            output.calculateError();
-            output.calculateWeightsError(learningRate);
-        }
-        for (int i = hiddenLayers.length; i > 0; i++) {
+        for (int i = hiddenLayers.length - 1; i >= 0; i--) {
             for (HiddenNeuron hidden : hiddenLayers[i]) {
                 hidden.calculateError();
                 hidden.calculateWeightsError(learningRate);
@@ -133,11 +423,33 @@ public class MultilayerPerceptron {
         }
     }
 
-    public void train(double maxGlobalError) throws UnsolvableProblemException {
+    public void train(double maxGlobalError)
+            throws UnsolvableProblemException, InterruptedException {
+        train(Dataset.fromKnowledgeBase(knowledgeBase), maxGlobalError);
+    }
+
+    public void train(Dataset trainingSet, double maxGlobalError)
+            throws UnsolvableProblemException, InterruptedException {
+        /* Revisa una vez por época si se interrumpió el hilo, para que quien
+         * lo detenga (por ejemplo CrossValidation cuando falla otra
+         * partición) no espere a que se agoten las épocas.
+         */
+        if (trainingSet.size() == 0) {
+            throw new IllegalArgumentException(
+                    "No se puede entrenar con un conjunto vacío");
+        }
+        checkDimensions(trainingSet);
         try {
             double currentError;
+            int epochs = 0;
             do {
-                currentError = iterate();
+                if (epochs++ == maxEpochs) {
+                    throw new UnsolvableProblemException();
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                currentError = iterate(trainingSet);
             } while (currentError > maxGlobalError);
         } catch (StackOverflowError soe) {
             throw new UnsolvableProblemException(soe);
@@ -471,15 +783,31 @@ public class MultilayerPerceptron {
         decisions.add(new Double[]{3.0});
         if (decisions.size() == values.size()) {
             for (int i = 0; i < decisions.size(); i++) {
-                kb.put(values.get(i), decisions.get(i));
+                // las salidas sigmoides están en (0, 1): las clases 1, 2 y 3
+                // se representan como 0, 0.5 y 1
+                Double decision = (decisions.get(i)[0] - 1.0) / 2.0;
+                kb.put(values.get(i), new Double[]{decision});
             }
         }
-        MultilayerPerceptron network = new MultilayerPerceptron(4, 2, 4, 1, 0.5,
+        MultilayerPerceptron network = new MultilayerPerceptron(4, 2, 4, 1, 0.25,
             0.25, kb);
+        Dataset dataset = Dataset.fromKnowledgeBase(kb);
+        network.setNormalizer(Normalizer.fit(dataset,
+                Normalizer.Method.Z_SCORE));
+        Evaluator evaluator = new Evaluator();
         try {
-            network.train(0.2);
+            network.train(0.02);
+            Evaluation normalized = evaluator.evaluate(network, dataset);
+            network.foldNormalizer();
+            Evaluation folded = evaluator.evaluate(network, dataset);
+            System.out.print("Con normalización:\n" + normalized);
+            System.out.print("Absorbida en los pesos:\n" + folded);
         } catch (UnsolvableProblemException ex) {
             System.out.println(ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            evaluator.shutdown();
         }
     }
 }
@@ -0,0 +1,82 @@
+package multilayerperceptron;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *
+ * @author daniel
+ */
+public class MultilayerPerceptronBuilder implements NetworkFactory {
+    /* Construye redes con un número de neuronas distinto en cada capa. Por
+     * ejemplo, widths(4, 16, 8, 1) da una red de 4 entradas, dos capas
+     * escondidas de 16 y 8 neuronas y una salida.
+     *
+     * Los pesos de cada capa se reservan en un solo bloque contiguo, así que
+     * construir la red cuesta una reserva por capa y no una por enlace.
+     *
+     * widths: Número de neuronas de cada capa, de la de entrada a la de
+     *     salida.
+     * threshold, learningRate, knowledgeBase: Los mismos parámetros del
+     *     constructor de MultilayerPerceptron. Por omisión se usan un umbral
+     *     de 0.5 y una tasa de aprendizaje de 0.25.
+     * maxEpochs: Máximo de épocas de entrenamiento.
+     * seed: Semilla de los pesos iniciales. null para pesos distintos en
+     *     cada red.
+     */
+
+    private int[] widths;
+    private double threshold = 0.5;
+    private double learningRate = 0.25;
+    private Map<Double[], Double[]> knowledgeBase;
+    private int maxEpochs = MultilayerPerceptron.DEFAULT_MAX_EPOCHS;
+    private Long seed;
+
+    public MultilayerPerceptronBuilder widths(int... widths) {
+        this.widths = widths.clone();
+        return this;
+    }
+
+    public MultilayerPerceptronBuilder threshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    public MultilayerPerceptronBuilder learningRate(double learningRate) {
+        this.learningRate = learningRate;
+        return this;
+    }
+
+    public MultilayerPerceptronBuilder knowledgeBase(
+            Map<Double[], Double[]> knowledgeBase) {
+        this.knowledgeBase = knowledgeBase;
+        return this;
+    }
+
+    public MultilayerPerceptronBuilder maxEpochs(int maxEpochs) {
+        this.maxEpochs = maxEpochs;
+        return this;
+    }
+
+    public MultilayerPerceptronBuilder seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public MultilayerPerceptron build() {
+        if (widths == null) {
+            throw new IllegalStateException(
+                    "No se indicó el número de neuronas de cada capa");
+        }
+        MultilayerPerceptron network = new MultilayerPerceptron(widths,
+                threshold, learningRate, knowledgeBase,
+                seed == null ? new Random().nextLong() : seed);
+        network.setMaxEpochs(maxEpochs);
+        return network;
+    }
+
+    @Override
+    public MultilayerPerceptron create() {
+        return build();
+    }
+}
@@ -0,0 +1,14 @@
+package multilayerperceptron;
+
+/**
+ *
+ * @author daniel
+ */
+public interface NetworkFactory {
+    /* Crea redes nuevas, sin entrenar y con la misma topología. Se usa
+     * cuando hacen falta varias redes independientes, por ejemplo una por
+     * partición en la validación cruzada.
+     */
+
+    MultilayerPerceptron create();
+}
@@ -2,8 +2,7 @@ package multilayerperceptron;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.exp;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -12,29 +11,40 @@ import java.util.Map;
 abstract class Neuron {
     /* Neurona de la red. Pueden ser de entrada, salida o escondidas.
      * Cada una está asociada con todas las neuronas del siguiente nivel.
-     * 
+     *
      * expectedValue: Valor esperado para las neuronas de salida. null para
      *     las demás.
      * value: Valor en la neurona. Es null hasta que se calcula o introduce.
      * error: Error en las neuronas de salida o de la capa escondida. Es
      *     null hasta que se calcula.
-     * previousNeurons: Mapeo de las neurones anteriores a la actual
-     *     (down-top) con sus pesos de enlace. No existe para las
-     *     neuronas de entrada.
-     * nextNeurons: Mapeo de las neurones siguientes a la actual (top-down)
-     *     con sus pesos de enlace. No existe para las neuronas de
-     *     salida.
-     * weightsError: Mapeo de las neuronas siguientes a la actual (top-down)
-     *     con su error en el peso de enlace correspondiente. Siempre es
-    .*     null para las neuronas de salida.
+     * previousLayer: Neuronas de la capa anterior a la actual (down-top).
+     *     No existe para las neuronas de entrada.
+     * weights: Bloque contiguo con los pesos de enlace de toda la capa, un
+     *     renglón por neurona. El peso con previousLayer[i] está en
+     *     weights[offset + i]. No existe para las neuronas de entrada.
+     * weightsErrors: Error de cada peso de enlace de la neurona, en el orden
+     *     de previousLayer. null hasta el primer paso de entrenamiento, para
+     *     que una red que sólo predice no reserve el doble de memoria.
+     * weightsVersion: Versión de los pesos de la red a la que pertenece la
+     *     neurona. Los pesos sólo cambian a través de los métodos de
+     *     NonInputNeuron, y cada uno aumenta la versión para invalidar las
+     *     predicciones guardadas en caché.
+     * offset: Inicio del renglón de la neurona en weights.
+     * nextLayer: Neuronas de la capa siguiente a la actual (top-down). Sólo
+     *     existe para las neuronas escondidas.
+     * index: Posición de la neurona en su capa; es la columna de sus pesos
+     *     en los renglones de nextLayer.
+     * bias: Término independiente que se suma a la entrada neta. No existe
+     *     para las neuronas de entrada.
+     * biasError: Corrección pendiente de bias, como weightsErrors para los
+     *     pesos.
      */
     Double value;
-    
+
     abstract public Double getValue();
 }
 
 class InputNeuron extends Neuron {
-    Map<NonInputNeuron, Link> nextNeurons;
 
     public void setValue (double value) {
         this.value = value;
@@ -43,25 +53,17 @@ class InputNeuron extends Neuron {
     public Double getValue () {
         return value;
     }
-
-    public InputNeuron () {
-        nextNeurons = new HashMap<>();
-    }
-
-    private void addNextNeuron (NonInputNeuron next, Link link) {
-        nextNeurons.put(next, link);
-    }
-
-    public void link (NonInputNeuron next) {
-        Link link = new Link();
-        this.addNextNeuron(next, link);
-        next.addPreviousNeuron(this, link);
-    }
 }
 
 abstract class NonInputNeuron extends Neuron {
-    Map<Neuron, Link> previousNeurons;
+    Neuron[] previousLayer;
+    private double[] weights;
+    private double[] weightsErrors;
+    private AtomicLong weightsVersion;
+    int offset;
     Double error;
+    private double bias;
+    private double biasError;
 
     public double getError ()  throws NullPointerException {
         if (error != null) {
@@ -71,21 +73,59 @@ abstract class NonInputNeuron extends Neuron {
             return error;
         }
     }
-    protected void addPreviousNeuron(Neuron previous, Link link) {
-        previousNeurons.put(previous, link);
+
+    protected void connect (Neuron[] previousLayer, double[] weights,
+            int offset, AtomicLong weightsVersion) {
+        this.previousLayer = previousLayer;
+        this.weights = weights;
+        this.offset = offset;
+        this.weightsVersion = weightsVersion;
+    }
+
+    public double getWeight (int i) {
+        return weights[offset + i];
+    }
+
+    public double getBias () {
+        return bias;
+    }
+
+    public void setWeight (int i, double weight) {
+        weights[offset + i] = weight;
+        weightsVersion.incrementAndGet();
     }
 
     protected double net () throws NullPointerException {
-        double rtrn = 0.0;
-        for (Neuron previousNeuron : previousNeurons.keySet()) {
-            rtrn += previousNeuron.value *
-                    previousNeurons.get(previousNeuron).getWeight();
+        double rtrn = bias;
+        for (int i = 0; i < previousLayer.length; i++) {
+            rtrn += previousLayer[i].value * weights[offset + i];
         }
         return rtrn;
     }
 
+    protected double net (double[] previousValues) {
+        double rtrn = bias;
+        for (int i = 0; i < previousLayer.length; i++) {
+            rtrn += previousValues[i] * weights[offset + i];
+        }
+        return rtrn;
+    }
+
+    protected void fold (double[] scales, double[] offsets) {
+        // w * (x * scale + offset) = (w * scale) * x + w * offset
+        for (int i = 0; i < previousLayer.length; i++) {
+            bias += weights[offset + i] * offsets[i];
+            weights[offset + i] *= scales[i];
+        }
+        weightsVersion.incrementAndGet();
+    }
+
     protected double sigma () {
-        return 1 / (1 + exp(-net()));
+        return sigma(net());
+    }
+
+    protected static double sigma (double net) {
+        return 1 / (1 + exp(-net));
     }
 
     protected double primeSigma () {
@@ -99,47 +139,47 @@ abstract class NonInputNeuron extends Neuron {
 
     abstract public void calculateError ();
 
+    public void calculateWeightsError (double learningRate)  throws NullPointerException {
+        if (weightsErrors == null) {
+            weightsErrors = new double[previousLayer.length];
+        }
+        for (int i = 0; i < previousLayer.length; i++) {
+            weightsErrors[i] =
+                    learningRate * error * previousLayer[i].value;
+        }
+        biasError = learningRate * error;
+    }
+
     public void updateWeights () {
-        for (Neuron previousNeuron : previousNeurons.keySet()) {
-            previousNeurons.get(previousNeuron).updateWeight();
+        if (weightsErrors != null) {
+            for (int i = 0; i < previousLayer.length; i++) {
+                weights[offset + i] += weightsErrors[i];
+                weightsErrors[i] = 0.0;
+            }
         }
+        bias += biasError;
+        biasError = 0.0;
+        weightsVersion.incrementAndGet();
     }
 }
 
 class HiddenNeuron extends NonInputNeuron {
-    Map<NonInputNeuron, Link> nextNeurons;
+    NonInputNeuron[] nextLayer;
+    int index;
 
-    public HiddenNeuron () {
-        previousNeurons = new HashMap<>();
-        nextNeurons = new HashMap<>();
-    }
-
-    private void addNextNeuron (NonInputNeuron next, Link link) {
-        nextNeurons.put(next, link);
-    }
-
-    public void link (NonInputNeuron next) {
-        Link link = new Link();
-        this.addNextNeuron(next, link);
-        next.addPreviousNeuron(this, link);
+    protected void connectNext (NonInputNeuron[] nextLayer, int index) {
+        this.nextLayer = nextLayer;
+        this.index = index;
     }
 
     public void calculateError () {
         error = 0.0;
-        for (NonInputNeuron nextNeuron : nextNeurons.keySet()) {
-            error += nextNeuron.error *
-                     nextNeurons.get(nextNeuron).getWeight();
+        for (NonInputNeuron nextNeuron : nextLayer) {
+            error += nextNeuron.error * nextNeuron.getWeight(index);
         }
         error *= primeSigma();
     }
 
-    public void calculateWeightsError (double learningRate)  throws NullPointerException {
-        for (Neuron previousNeuron : previousNeurons.keySet()) {
-            double linkError = learningRate * error * previousNeuron.value;
-            previousNeurons.get(previousNeuron).setError(linkError);
-        }
-    }
-
     public Double getValue () {
         return value;
     }
@@ -149,31 +189,19 @@ class HiddenNeuron extends NonInputNeuron {
 
 class OutputNeuron extends NonInputNeuron {
     Double expectedValue;
-    Map<Neuron, Link> previousNeurons;
 
     public OutputNeuron () {
-        previousNeurons = new HashMap<>();
     }
 
     public OutputNeuron (double expectedValue) {
         // neuronas de entrada o salida
         this.expectedValue = expectedValue;
-        previousNeurons = new HashMap<>();
     }
 
     public void calculateError () {
         error = (expectedValue - value) * primeSigma();
     }
 
-    protected double net () throws NullPointerException {
-        double rtrn = 0.0;
-        for (Neuron previousNeuron : previousNeurons.keySet()) {
-            rtrn += previousNeuron.value *
-                    previousNeurons.get(previousNeuron).getWeight();
-        }
-        return rtrn;
-    }
-
     public boolean evaluate (double threshold) throws
             UnexpectedActionException {
         return abs(value-expectedValue) < threshold;
@@ -183,35 +211,4 @@ class OutputNeuron extends NonInputNeuron {
         if (value == null) calculateValue();
         return value;
     }
-
-    public void calculateWeightsError (double learningRate)  throws NullPointerException {
-        for (Neuron previousNeuron : previousNeurons.keySet()) {
-            double linkError = learningRate * error * previousNeuron.value;
-            previousNeurons.get(previousNeuron).setError(linkError);
-        }
-    }
-}
-
-class Link {
-    private double weight;
-    private Double error;
-
-    public Link() {}
-
-    public Link(double weight) {
-        this.weight = weight;
-    }
-
-    public void updateWeight () {
-        weight += error;
-        error = 0.0;
-    }
-
-    public double getWeight () {
-        return weight;
-    }
-
-    public void setError (double error) {
-        this.error = error;
-    }
 }
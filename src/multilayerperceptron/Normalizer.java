@@ -0,0 +1,111 @@
+package multilayerperceptron;
+
+/**
+ *
+ * @author daniel
+ */
+public class Normalizer {
+    /* Normalización de las entradas de la red. Cada característica se
+     * transforma como x' = x * scale + offset, con los parámetros calculados
+     * en un solo recorrido del conjunto de entrenamiento.
+     *
+     * Z_SCORE: Centra cada característica en su media y la divide entre su
+     *     desviación estándar.
+     * MIN_MAX: Lleva cada característica del intervalo [mínimo, máximo] al
+     *     intervalo [0, 1].
+     *
+     * scales, offsets: Parámetros de la transformación de cada
+     *     característica. Si una característica es constante sólo se
+     *     desplaza, para no dividir entre cero.
+     *
+     * Como la transformación es afín puede absorberse en los pesos de la
+     * primera capa escondida (MultilayerPerceptron.foldNormalizer), así que
+     * sólo cuesta mientras se entrena.
+     */
+
+    public enum Method {
+        Z_SCORE, MIN_MAX
+    }
+
+    final double[] scales;
+    final double[] offsets;
+
+    Normalizer(double[] scales, double[] offsets) {
+        this.scales = scales;
+        this.offsets = offsets;
+    }
+
+    public static Normalizer fit(Dataset dataset, Method method) {
+        if (dataset.size() == 0) {
+            throw new IllegalArgumentException(
+                    "No se puede normalizar un conjunto vacío");
+        }
+        int features = dataset.getPattern(0).length;
+        // media y suma de cuadrados de las diferencias (Welford), mínimo y
+        // máximo, todos en el mismo recorrido
+        double[] means = new double[features];
+        double[] squares = new double[features];
+        double[] minimums = dataset.getPattern(0).clone();
+        double[] maximums = dataset.getPattern(0).clone();
+        for (int k = 0; k < dataset.size(); k++) {
+            double[] pattern = dataset.getPattern(k);
+            if (pattern.length != features) {
+                throw new IllegalArgumentException("El patrón " + k +
+                        " tiene " + pattern.length + " valores y se " +
+                        "esperaban " + features);
+            }
+            for (int i = 0; i < features; i++) {
+                double value = pattern[i];
+                double delta = value - means[i];
+                means[i] += delta / (k + 1);
+                squares[i] += delta * (value - means[i]);
+                if (value < minimums[i]) {
+                    minimums[i] = value;
+                }
+                if (value > maximums[i]) {
+                    maximums[i] = value;
+                }
+            }
+        }
+        double[] scales = new double[features];
+        double[] offsets = new double[features];
+        for (int i = 0; i < features; i++) {
+            double center;
+            double spread;
+            if (method == Method.Z_SCORE) {
+                center = means[i];
+                spread = Math.sqrt(squares[i] / dataset.size());
+            } else {
+                center = minimums[i];
+                spread = maximums[i] - minimums[i];
+            }
+            scales[i] = spread > 0.0 ? 1.0 / spread : 1.0;
+            offsets[i] = -center * scales[i];
+        }
+        return new Normalizer(scales, offsets);
+    }
+
+    public int getFeatures() {
+        return scales.length;
+    }
+
+    public double getScale(int feature) {
+        return scales[feature];
+    }
+
+    public double getOffset(int feature) {
+        return offsets[feature];
+    }
+
+    public double apply(int feature, double value) {
+        return value * scales[feature] + offsets[feature];
+    }
+
+    public double[] apply(double[] pattern) {
+        double[] rtrn = new double[pattern.length];
+        for (int i = 0; i < pattern.length; i++) {
+            rtrn[i] = pattern[i] * scales[i] + offsets[i];
+        }
+        return rtrn;
+    }
+}
@@ -0,0 +1,208 @@
+package multilayerperceptron;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * @author daniel
+ */
+public class PredictionCache {
+    /* Caché acotada de predicciones patrón -> salidas de la red. Se coloca
+     * delante de MultilayerPerceptron.predict para no repetir la propagación
+     * hacia adelante con patrones que ya se vieron.
+     *
+     * segments: Segmentos independientes, cada uno con su propio candado,
+     *     para que hilos con patrones distintos no compitan entre sí. Cada
+     *     segmento es un LinkedHashMap en orden de acceso (LRU) que desaloja
+     *     la entrada más antigua al rebasar su capacidad.
+     * hits, misses, evictions: Métricas de la caché.
+     * owner: Red a la que pertenece la caché. Las versiones de pesos de
+     *     redes distintas empiezan todas en 0, así que compartir la caché
+     *     entre dos redes le devolvería a una las predicciones de la otra.
+     *
+     * Las llaves se calculan directamente sobre los double del patrón (sin
+     * convertirlos a Double) y se comparan por contenido, no por identidad.
+     * Cada segmento recuerda la versión de pesos con la que se llenó; en
+     * cuanto la red reporta una versión nueva el segmento se vacía, así que
+     * nunca se devuelve una predicción calculada con pesos anteriores.
+     */
+
+    static final int DEFAULT_CONCURRENCY = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicReference<MultilayerPerceptron> owner =
+            new AtomicReference<>();
+
+    public PredictionCache(int capacity) {
+        this(capacity, DEFAULT_CONCURRENCY);
+    }
+
+    public PredictionCache(int capacity, int concurrency) {
+        if (capacity <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "La capacidad y la concurrencia deben ser positivas");
+        }
+        int count = 1;
+        while (count < concurrency && count < capacity) {
+            count <<= 1;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // se reparte el sobrante entre los primeros segmentos
+            int segmentCapacity = capacity / count +
+                    (i < capacity % count ? 1 : 0);
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    boolean bind(MultilayerPerceptron network) {
+        return owner.compareAndSet(null, network) || owner.get() == network;
+    }
+
+    double[] get(double[] pattern, long version) {
+        Key key = new Key(pattern);
+        Segment segment = segmentFor(key);
+        double[] prediction;
+        synchronized (segment) {
+            segment.synchronize(version);
+            prediction = segment.version == version ? segment.get(key) : null;
+        }
+        if (prediction == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return prediction.clone();
+    }
+
+    void put(double[] pattern, double[] prediction, long version) {
+        Key key = new Key(pattern.clone());
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.synchronize(version);
+            if (segment.version == version &&
+                    segment.put(key, prediction.clone())) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long requests = hitCount + misses.get();
+        return requests == 0 ? 0.0 : (double) hitCount / (double) requests;
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hash;
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static final class Key {
+        final double[] pattern;
+        final int hash;
+
+        Key(double[] pattern) {
+            this.pattern = pattern;
+            this.hash = Arrays.hashCode(pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(pattern, other.pattern);
+        }
+    }
+
+    private static final class Segment {
+        final int capacity;
+        // en orden de acceso: la primera entrada es la menos usada
+        final LinkedHashMap<Key, double[]> entries =
+                new LinkedHashMap<>(16, 0.75f, true);
+        long version;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void synchronize(long version) {
+            if (version > this.version) {
+                entries.clear();
+                this.version = version;
+            }
+        }
+
+        double[] get(Key key) {
+            return entries.get(key);
+        }
+
+        boolean put(Key key, double[] prediction) {
+            // regresa si se desalojó una entrada para hacer lugar
+            entries.put(key, prediction);
+            if (entries.size() > capacity) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                return true;
+            }
+            return false;
+        }
+
+        void clear() {
+            entries.clear();
+        }
+
+        int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package multilayerperceptron;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * @author daniel
+ */
+public class PredictionServer {
+    /* Servidor HTTP local que responde predicciones de una red entrenada.
+     * Sólo escucha en la interfaz de loopback.
+     *
+     * POST /predict: El cuerpo es un patrón, con los valores separados por
+     *     comas o espacios. La respuesta son los valores de las neuronas de
+     *     salida, separados por comas.
+     * GET /metrics: Latencia (p50, p99), rendimiento y tamaño medio de los
+     *     lotes, una métrica por línea.
+     *
+     * Cada petición se entrega a un MicroBatcher, que junta las que llegan
+     * al mismo tiempo en un lote. El hilo que la atiende espera su
+     * respuesta, así que los hilos se limitan a dos lotes: uno que se
+     * junta mientras se responde el anterior. Las demás peticiones esperan
+     * en la cola del servidor sin ocupar un hilo.
+     *
+     * server: Servidor HTTP del JDK.
+     * batcher: Agrupador de peticiones frente a la red.
+     * handlers: Hilos que atienden las conexiones.
+     * maxBodyBytes: Tamaño máximo del cuerpo de una petición. Alcanza para
+     *     BYTES_PER_VALUE caracteres por entrada de la red; un cuerpo más
+     *     grande se rechaza con 413 sin leerlo completo.
+     */
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final int BYTES_PER_VALUE = 64;
+
+    private final HttpServer server;
+    private final MicroBatcher batcher;
+    private final ExecutorService handlers;
+    private final int maxBodyBytes;
+
+    public PredictionServer(MultilayerPerceptron network, int port,
+            int maxBatchSize, long maxWaitMillis) throws IOException {
+        this.batcher = new MicroBatcher(network, maxBatchSize, maxWaitMillis,
+                TimeUnit.MILLISECONDS);
+        this.server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 0);
+        this.maxBodyBytes = BYTES_PER_VALUE * (network.inputs.length + 1);
+        this.handlers = Executors.newFixedThreadPool(2 * maxBatchSize,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "prediction-server");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        server.setExecutor(handlers);
+        server.createContext("/predict", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                predict(exchange);
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, 200, batcher.getMetrics().toString());
+            }
+        });
+    }
+
+    public void start() {
+        batcher.start();
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        batcher.shutdown();
+        handlers.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ServingMetrics getMetrics() {
+        return batcher.getMetrics();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "Sólo se aceptan peticiones POST\n");
+            return;
+        }
+        String body = read(exchange.getRequestBody(), maxBodyBytes);
+        if (body == null) {
+            respond(exchange, 413, "El cuerpo rebasa " + maxBodyBytes +
+                    " bytes\n");
+            return;
+        }
+        double[] pattern;
+        try {
+            pattern = parse(body);
+        } catch (NumberFormatException nfe) {
+            respond(exchange, 400, "Patrón inválido: " + nfe.getMessage() +
+                    "\n");
+            return;
+        }
+        try {
+            double[] prediction = batcher.predict(pattern);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < prediction.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(prediction[i]);
+            }
+            respond(exchange, 200, sb.append('\n').toString());
+        } catch (IllegalArgumentException iae) {
+            respond(exchange, 400, iae.getMessage() + "\n");
+        } catch (IllegalStateException ise) {
+            respond(exchange, 503, ise.getMessage() + "\n");
+        } catch (RuntimeException re) {
+            respond(exchange, 500, "Error al predecir: " + re + "\n");
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "El servidor se está deteniendo\n");
+        }
+    }
+
+    static double[] parse(String body) {
+        String trimmed = body.trim();
+        if (trimmed.isEmpty()) {
+            return new double[0];
+        }
+        String[] fields = trimmed.split("[,\\s]+");
+        double[] rtrn = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            rtrn[i] = Double.parseDouble(fields[i]);
+        }
+        return rtrn;
+    }
+
+    private static String read(InputStream in, int limit)
+            throws IOException {
+        /* Regresa null en cuanto el cuerpo rebasa limit bytes. */
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int read;
+        try {
+            while ((read = in.read(buffer)) != -1) {
+                if (out.size() + read > limit) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray(), UTF8);
+    }
+
+    private static void respond(HttpExchange exchange, int status,
+            String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
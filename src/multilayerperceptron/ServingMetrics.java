@@ -0,0 +1,85 @@
+package multilayerperceptron;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author daniel
+ */
+public class ServingMetrics {
+    /* Métricas de latencia y rendimiento de las predicciones servidas.
+     *
+     * latencies: Ventana circular con las latencias, en nanosegundos, de
+     *     las últimas WINDOW predicciones. Los percentiles se calculan sobre
+     *     ella.
+     * requests: Total de predicciones servidas.
+     * batches: Total de lotes propagados por la red.
+     * start: Momento en que empezó a servir el agrupador, para el
+     *     rendimiento.
+     */
+
+    static final int WINDOW = 8192;
+
+    private final long[] latencies = new long[WINDOW];
+    private long requests;
+    private long batches;
+    private long start = System.nanoTime();
+
+    synchronized void start() {
+        start = System.nanoTime();
+    }
+
+    synchronized void record(long[] batchLatencies) {
+        for (int i = 0; i < batchLatencies.length; i++) {
+            latencies[(int) (requests % WINDOW)] = batchLatencies[i];
+            requests++;
+        }
+        batches++;
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    public synchronized double getMeanBatchSize() {
+        return batches == 0 ? 0.0 : (double) requests / (double) batches;
+    }
+
+    public synchronized double getThroughput() {
+        /* Predicciones por segundo desde que se empezó a medir. */
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds <= 0.0 ? 0.0 : requests / seconds;
+    }
+
+    public long getLatencyPercentile(double percentile) {
+        if (percentile <= 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(
+                    "El percentil debe estar en (0, 100]");
+        }
+        long[] window;
+        synchronized (this) {
+            window = Arrays.copyOf(latencies, (int) Math.min(requests,
+                    WINDOW));
+        }
+        if (window.length == 0) {
+            return 0L;
+        }
+        Arrays.sort(window);
+        int rank = (int) Math.ceil(percentile / 100.0 * window.length);
+        return window[Math.max(rank, 1) - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "requests " + getRequestCount() + "\n" +
+                "batches " + getBatchCount() + "\n" +
+                "mean_batch_size " + getMeanBatchSize() + "\n" +
+                "throughput_per_second " + getThroughput() + "\n" +
+                "latency_p50_ms " + getLatencyPercentile(50.0) / 1e6 + "\n" +
+                "latency_p99_ms " + getLatencyPercentile(99.0) / 1e6 + "\n";
+    }
+}
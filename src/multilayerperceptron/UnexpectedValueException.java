@@ -10,7 +10,7 @@ package multilayerperceptron;
  */
 public class UnexpectedValueException extends Exception {
 
-    private Boolean inconsistency;
+    private Boolean wrongSize;
     private Integer recordNotFound;
 
     public UnexpectedValueException(Boolean wrongSize,
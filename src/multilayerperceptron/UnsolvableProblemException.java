@@ -11,6 +11,11 @@ package multilayerperceptron;
 class UnsolvableProblemException extends Exception {
     private String message;
 
+    public UnsolvableProblemException() {
+        super("No se puede resolver el problema dentro del margen " +
+                "de error especificado. Intenta con un margen más grande.");
+    }
+
     public UnsolvableProblemException(Throwable throwable) {
         super(throwable);
         this.message = "No se puede resolver el problema dentro del margen" +
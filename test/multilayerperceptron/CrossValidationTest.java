@@ -0,0 +1,143 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class CrossValidationTest {
+
+    private static Dataset separable(int size) {
+        Random random = new Random(3L);
+        double[][] patterns = new double[size][4];
+        double[][] decisions = new double[size][1];
+        for (int i = 0; i < size; i++) {
+            int c = i % 3;
+            for (int j = 0; j < 4; j++) {
+                patterns[i][j] = 1.0 + 2.0 * c + random.nextGaussian() * 0.3;
+            }
+            decisions[i][0] = c / 2.0;
+        }
+        return new Dataset(patterns, decisions);
+    }
+
+    @Test
+    public void testFoldsPartitionRows() {
+        int size = 23;
+        CrossValidation cv = new CrossValidation(4, 2, 11L);
+        int[] order = cv.shuffledRows(size);
+        int[] seen = new int[size];
+        for (int fold = 0; fold < 4; fold++) {
+            int[] test = cv.testRows(order, fold);
+            int[] training = cv.trainingRows(order, fold);
+            assertEquals(size, test.length + training.length);
+            assertTrue(test.length == size / 4 || test.length == size / 4 + 1);
+            boolean[] inTest = new boolean[size];
+            for (int row : test) {
+                inTest[row] = true;
+                seen[row]++;
+            }
+            for (int row : training) {
+                assertTrue(!inTest[row]);
+            }
+        }
+        for (int count : seen) {
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    public void testTrainsEveryFold() throws Exception {
+        Dataset dataset = separable(150);
+        MultilayerPerceptronBuilder builder = new MultilayerPerceptronBuilder()
+                .widths(4, 6, 1).threshold(0.25).learningRate(0.5).seed(1L)
+                .maxEpochs(2000);
+        CrossValidationResult result = new CrossValidation(5, 5, 0L)
+                .run(builder, dataset, 0.01);
+        assertEquals(5, result.getFolds());
+        int evaluated = 0;
+        for (int fold = 0; fold < result.getFolds(); fold++) {
+            evaluated += result.getEvaluation(fold).getSize();
+            assertTrue(result.getTrainingNanos(fold) > 0);
+        }
+        assertEquals(dataset.size(), evaluated);
+        assertTrue(result.getMeanAccuracy() > 0.9);
+        assertTrue(result.getMeanGlobalError() < 0.05);
+    }
+
+    @Test(expected = UnsolvableProblemException.class)
+    public void testUnreachableErrorIsUnsolvable() throws Exception {
+        MultilayerPerceptronBuilder builder = new MultilayerPerceptronBuilder()
+                .widths(4, 2, 1).seed(1L).maxEpochs(5);
+        // una sigmoide nunca llega a 3, así que el error no baja de 0
+        Dataset dataset = new Dataset(separable(10).patterns,
+                new double[10][1]);
+        for (double[] decision : dataset.decisions) {
+            decision[0] = 3.0;
+        }
+        new CrossValidation(2, 2, 0L).run(builder, dataset, 0.0);
+    }
+
+    @Test
+    public void testFailedFoldStopsTheOthers() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        NetworkFactory factory = new NetworkFactory() {
+            @Override
+            public MultilayerPerceptron create() {
+                // sólo la primera red se rinde pronto; las demás entrenarían
+                // sin fin si nadie las detiene
+                return new MultilayerPerceptronBuilder().widths(4, 2, 1)
+                        .seed(1L).maxEpochs(created.getAndIncrement() == 0 ?
+                                1 : Integer.MAX_VALUE).build();
+            }
+        };
+        Dataset dataset = new Dataset(separable(40).patterns,
+                new double[40][1]);
+        for (double[] decision : dataset.decisions) {
+            decision[0] = 3.0;
+        }
+        long start = System.nanoTime();
+        try {
+            new CrossValidation(4, 4, 0L).run(factory, dataset, 0.0);
+            fail("Se esperaba UnsolvableProblemException");
+        } catch (UnsolvableProblemException upe) {
+            // la partición que se rindió
+        }
+        long deadline = start + 10000000000L;
+        while (trainingThreads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, trainingThreads());
+    }
+
+    @Test
+    public void testTrainStopsWhenInterrupted() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(4, 2, 1).seed(1L).maxEpochs(Integer.MAX_VALUE)
+                .build();
+        Thread.currentThread().interrupt();
+        try {
+            network.train(separable(9), 0.0);
+            fail("Se esperaba InterruptedException");
+        } catch (InterruptedException ie) {
+            assertTrue(!Thread.currentThread().isInterrupted());
+        }
+    }
+
+    private static int trainingThreads() {
+        int rtrn = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("cross-validation".equals(thread.getName())) {
+                assertTrue(thread.isDaemon());
+                rtrn++;
+            }
+        }
+        return rtrn;
+    }
+}
@@ -0,0 +1,52 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class DatasetTest {
+
+    private static Dataset dataset() {
+        double[][] patterns = new double[6][];
+        double[][] decisions = new double[6][];
+        for (int i = 0; i < 6; i++) {
+            patterns[i] = new double[]{i, i * 10.0};
+            decisions[i] = new double[]{1.0 + i % 3};
+        }
+        return new Dataset(patterns, decisions);
+    }
+
+    @Test
+    public void testViewSharesRows() {
+        Dataset dataset = dataset();
+        Dataset view = dataset.view(new int[]{4, 1});
+        assertEquals(2, view.size());
+        assertSame(dataset.getPattern(4), view.getPattern(0));
+        assertSame(dataset.getDecision(1), view.getDecision(1));
+        assertArrayEquals(dataset.getLabels(), view.getLabels(), 0.0);
+    }
+
+    @Test
+    public void testNestedViewMapsToOriginalRows() {
+        Dataset dataset = dataset();
+        Dataset view = dataset.view(new int[]{5, 3, 1}).view(new int[]{2, 0});
+        assertSame(dataset.getPattern(1), view.getPattern(0));
+        assertSame(dataset.getPattern(5), view.getPattern(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testViewOutOfRange() {
+        dataset().view(new int[]{0, 1}).view(new int[]{2});
+    }
+
+    @Test
+    public void testLabels() {
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0}, dataset().getLabels(),
+                0.0);
+    }
+}
@@ -0,0 +1,160 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class EvaluatorTest {
+
+    private final Evaluator sequential = new Evaluator(1);
+    private final Evaluator parallel = new Evaluator(4);
+
+    @After
+    public void tearDown() {
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    private static double sigma(double net) {
+        return 1.0 / (1.0 + Math.exp(-net));
+    }
+
+    @Test
+    public void testSquaredMeanErrors() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(1, 2).threshold(0.3).seed(1L).build();
+        network.outputs[0].setWeight(0, 2.0);
+        network.outputs[1].setWeight(0, -1.0);
+        double b0 = network.outputs[0].getBias();
+        double b1 = network.outputs[1].getBias();
+        Dataset dataset = new Dataset(new double[][]{{0.5}, {-1.0}},
+                new double[][]{{1.0, 0.0}, {0.0, 1.0}});
+        Evaluation evaluation = sequential.evaluate(network, dataset);
+
+        double e00 = sigma(2.0 * 0.5 + b0) - 1.0;
+        double e01 = sigma(-1.0 * 0.5 + b1) - 0.0;
+        double e10 = sigma(2.0 * -1.0 + b0) - 0.0;
+        double e11 = sigma(-1.0 * -1.0 + b1) - 1.0;
+        assertArrayEquals(new double[]{
+            (e00 * e00 + e10 * e10) / 2.0,
+            (e01 * e01 + e11 * e11) / 2.0
+        }, evaluation.getSquaredMeanErrors(), 1e-15);
+        long correct = 0;
+        if (Math.abs(e00) < 0.3 && Math.abs(e01) < 0.3) {
+            correct++;
+        }
+        if (Math.abs(e10) < 0.3 && Math.abs(e11) < 0.3) {
+            correct++;
+        }
+        assertEquals(correct, evaluation.getCorrect());
+        assertEquals(2, evaluation.getSize());
+    }
+
+    @Test
+    public void testNearestLabelForOneOutput() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(1, 1).seed(1L).build();
+        network.outputs[0].setWeight(0, 20.0);
+        // con este patrón la salida es exactamente 0.5
+        double middle = -network.outputs[0].getBias() / 20.0;
+        Dataset dataset = new Dataset(
+                new double[][]{{-1.0}, {middle}, {1.0}, {1.0}, {-1.0}},
+                new double[][]{{0.0}, {0.5}, {1.0}, {0.5}, {1.0}});
+        Evaluation evaluation = sequential.evaluate(network, dataset);
+        assertArrayEquals(new double[]{0.0, 0.5, 1.0},
+                evaluation.getLabels(), 0.0);
+        long[][] expected = {
+            {1, 0, 0},
+            {0, 1, 1},
+            {1, 0, 1}
+        };
+        assertArrayEquals(expected, evaluation.getConfusionMatrix());
+    }
+
+    @Test
+    public void testArgmaxForSeveralOutputs() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(2, 2).seed(1L).build();
+        network.outputs[0].setWeight(0, 20.0);
+        network.outputs[0].setWeight(1, 0.0);
+        network.outputs[1].setWeight(0, 0.0);
+        network.outputs[1].setWeight(1, 20.0);
+        Dataset dataset = new Dataset(
+                new double[][]{{1.0, 0.0}, {0.0, 1.0}, {1.0, 0.0}},
+                new double[][]{{1.0, 0.0}, {0.0, 1.0}, {0.0, 1.0}});
+        Evaluation evaluation = sequential.evaluate(network, dataset);
+        assertArrayEquals(new double[]{0.0, 1.0}, evaluation.getLabels(),
+                0.0);
+        assertArrayEquals(new long[][]{{1, 0}, {1, 1}},
+                evaluation.getConfusionMatrix());
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        int size = Evaluator.MIN_CHUNK * 40 + 7;
+        Random random = new Random(5L);
+        double[][] patterns = new double[size][3];
+        double[][] decisions = new double[size][1];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < 3; j++) {
+                patterns[i][j] = random.nextGaussian();
+            }
+            decisions[i][0] = random.nextInt(3) / 2.0;
+        }
+        Dataset dataset = new Dataset(patterns, decisions);
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(3, 5, 1).seed(2L).build();
+        Evaluation one = sequential.evaluate(network, dataset);
+        Evaluation four = parallel.evaluate(network, dataset);
+        assertEquals(size, four.getSize());
+        assertEquals(one.getCorrect(), four.getCorrect());
+        assertArrayEquals(one.getSquaredMeanErrors(),
+                four.getSquaredMeanErrors(), 1e-12);
+        assertArrayEquals(one.getConfusionMatrix(),
+                four.getConfusionMatrix());
+    }
+
+    @Test
+    public void testRegressionSkipsConfusionMatrix() throws Exception {
+        int size = Evaluator.MAX_LABELS * 10;
+        Random random = new Random(9L);
+        double[][] patterns = new double[size][2];
+        double[][] decisions = new double[size][1];
+        for (int i = 0; i < size; i++) {
+            patterns[i][0] = random.nextDouble();
+            patterns[i][1] = random.nextDouble();
+            decisions[i][0] = random.nextDouble();
+        }
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(2, 3, 1).seed(4L).build();
+        Evaluation evaluation = parallel.evaluate(network,
+                new Dataset(patterns, decisions));
+        assertEquals(0, evaluation.getLabels().length);
+        assertEquals(0, evaluation.getConfusionMatrix().length);
+        assertEquals(size, evaluation.getSize());
+        double error = evaluation.getSquaredMeanErrors()[0];
+        assertEquals(true, error > 0.0 && error < 1.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPatternWidthMismatch() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(3, 1).seed(1L).build();
+        sequential.evaluate(network, new Dataset(new double[][]{{1.0, 2.0}},
+                new double[][]{{1.0}}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecisionWidthMismatch() throws Exception {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(2, 1).seed(1L).build();
+        parallel.evaluate(network, new Dataset(new double[][]{{1.0, 2.0}},
+                new double[][]{{1.0, 0.0}}));
+    }
+}
@@ -0,0 +1,96 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class MicroBatcherTest {
+
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 8;
+
+    private MultilayerPerceptron network;
+    private MicroBatcher batcher;
+
+    @Before
+    public void setUp() {
+        network = new MultilayerPerceptronBuilder().widths(4, 6, 2).seed(1L)
+                .build();
+        batcher = new MicroBatcher(network, 16, 20, TimeUnit.MILLISECONDS);
+        batcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    public void testCoalescesConcurrentRequests() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                            double[] pattern = {id, i, id * i, 1.0};
+                            assertArrayEquals(network.forward(pattern),
+                                    batcher.predict(pattern), 0.0);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        ServingMetrics metrics = batcher.getMetrics();
+        assertEquals(THREADS * REQUESTS_PER_THREAD, metrics.getRequestCount());
+        assertTrue(metrics.getBatchCount() < metrics.getRequestCount());
+        assertTrue(metrics.getMeanBatchSize() > 1.0);
+        assertTrue(metrics.getMeanBatchSize() <= 16.0);
+        assertTrue(metrics.getLatencyPercentile(99.0) > 0);
+    }
+
+    @Test
+    public void testSingleRequestIsNotHeldBack() throws Exception {
+        long start = System.nanoTime();
+        batcher.predict(new double[]{1.0, 2.0, 3.0, 4.0});
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, batcher.getMetrics().getBatchCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongLength() throws Exception {
+        batcher.predict(new double[]{1.0, 2.0});
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsAfterShutdown() throws Exception {
+        batcher.shutdown();
+        batcher.predict(new double[]{1.0, 2.0, 3.0, 4.0});
+    }
+}
@@ -0,0 +1,100 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class MultilayerPerceptronBuilderTest {
+
+    @Test
+    public void testLayerWidths() {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(4, 16, 8, 3).seed(1L).build();
+        assertEquals(4, network.inputs.length);
+        assertEquals(2, network.hiddenLayers.length);
+        assertEquals(16, network.hiddenLayers[0].length);
+        assertEquals(8, network.hiddenLayers[1].length);
+        assertEquals(3, network.outputs.length);
+        assertEquals(3, network.predict(new double[4]).length);
+    }
+
+    @Test
+    public void testWiring() {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(3, 5, 2).seed(1L).build();
+        for (HiddenNeuron neuron : network.hiddenLayers[0]) {
+            assertNotNull(neuron);
+            assertSame(network.inputs, neuron.previousLayer);
+        }
+        for (OutputNeuron neuron : network.outputs) {
+            assertSame(network.hiddenLayers[0], neuron.previousLayer);
+        }
+    }
+
+    @Test
+    public void testInitialWeightsInRange() {
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(9, 4, 1).seed(3L).build();
+        double range = 1.0 / 3.0;
+        boolean allEqual = true;
+        double first = network.hiddenLayers[0][0].getWeight(0);
+        for (HiddenNeuron neuron : network.hiddenLayers[0]) {
+            for (int i = 0; i < 9; i++) {
+                double weight = neuron.getWeight(i);
+                assertTrue(weight > -range && weight < range);
+                allEqual &= weight == first;
+            }
+        }
+        assertTrue(!allEqual);
+    }
+
+    @Test
+    public void testSeedIsReproducible() {
+        MultilayerPerceptronBuilder builder = new MultilayerPerceptronBuilder()
+                .widths(4, 6, 6, 2).seed(42L);
+        MultilayerPerceptron a = builder.build();
+        MultilayerPerceptron b = builder.build();
+        MultilayerPerceptron c = new MultilayerPerceptronBuilder()
+                .widths(4, 6, 6, 2).seed(43L).build();
+        boolean differs = false;
+        for (int l = 0; l < a.hiddenLayers.length; l++) {
+            for (int j = 0; j < a.hiddenLayers[l].length; j++) {
+                for (int i = 0; i < a.hiddenLayers[l][j].previousLayer.length;
+                        i++) {
+                    assertEquals(a.hiddenLayers[l][j].getWeight(i),
+                            b.hiddenLayers[l][j].getWeight(i), 0.0);
+                    differs |= a.hiddenLayers[l][j].getWeight(i) !=
+                            c.hiddenLayers[l][j].getWeight(i);
+                }
+            }
+        }
+        for (int j = 0; j < a.outputs.length; j++) {
+            for (int i = 0; i < 6; i++) {
+                assertEquals(a.outputs[j].getWeight(i),
+                        b.outputs[j].getWeight(i), 0.0);
+            }
+        }
+        assertTrue(differs);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleLayerRejected() {
+        new MultilayerPerceptronBuilder().widths(4).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyLayerRejected() {
+        new MultilayerPerceptronBuilder().widths(4, 0, 1).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWidthsRequired() {
+        new MultilayerPerceptronBuilder().build();
+    }
+}
@@ -0,0 +1,106 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class NormalizerTest {
+
+    private static Dataset randomDataset(int size) {
+        Random random = new Random(7L);
+        double[][] patterns = new double[size][4];
+        double[][] decisions = new double[size][1];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < 4; j++) {
+                patterns[i][j] = 0.1 + random.nextDouble() * 7.8;
+            }
+            decisions[i][0] = i % 2;
+        }
+        return new Dataset(patterns, decisions);
+    }
+
+    @Test
+    public void testZScore() {
+        Dataset dataset = randomDataset(200);
+        Normalizer normalizer = Normalizer.fit(dataset,
+                Normalizer.Method.Z_SCORE);
+        for (int j = 0; j < 4; j++) {
+            double sum = 0.0;
+            double squares = 0.0;
+            for (int i = 0; i < dataset.size(); i++) {
+                double value = normalizer.apply(j, dataset.getPattern(i)[j]);
+                sum += value;
+                squares += value * value;
+            }
+            assertEquals(0.0, sum / dataset.size(), 1e-9);
+            assertEquals(1.0, squares / dataset.size(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testMinMax() {
+        Dataset dataset = randomDataset(200);
+        Normalizer normalizer = Normalizer.fit(dataset,
+                Normalizer.Method.MIN_MAX);
+        for (int j = 0; j < 4; j++) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = 0; i < dataset.size(); i++) {
+                double value = normalizer.apply(j, dataset.getPattern(i)[j]);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            assertEquals(0.0, min, 1e-12);
+            assertEquals(1.0, max, 1e-12);
+        }
+    }
+
+    @Test
+    public void testConstantFeatureIsOnlyShifted() {
+        Dataset dataset = new Dataset(new double[][]{{3.0}, {3.0}},
+                new double[][]{{0.0}, {1.0}});
+        Normalizer normalizer = Normalizer.fit(dataset,
+                Normalizer.Method.Z_SCORE);
+        assertEquals(1.0, normalizer.getScale(0), 0.0);
+        assertEquals(0.0, normalizer.apply(0, 3.0), 0.0);
+    }
+
+    @Test
+    public void testFoldIsEquivalent() {
+        Dataset dataset = randomDataset(50);
+        for (Normalizer.Method method : Normalizer.Method.values()) {
+            MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                    .widths(4, 6, 3, 1).seed(3L).build();
+            network.setNormalizer(Normalizer.fit(dataset, method));
+            double[][] before = new double[dataset.size()][];
+            for (int i = 0; i < dataset.size(); i++) {
+                before[i] = network.predict(dataset.getPattern(i));
+            }
+            network.foldNormalizer();
+            assertNull(network.getNormalizer());
+            for (int i = 0; i < dataset.size(); i++) {
+                assertArrayEquals(before[i],
+                        network.predict(dataset.getPattern(i)), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testFoldWithoutHiddenLayers() {
+        Dataset dataset = randomDataset(20);
+        MultilayerPerceptron network = new MultilayerPerceptronBuilder()
+                .widths(4, 2).seed(5L).build();
+        network.setNormalizer(Normalizer.fit(dataset,
+                Normalizer.Method.MIN_MAX));
+        double[] before = network.predict(dataset.getPattern(0));
+        network.foldNormalizer();
+        assertArrayEquals(before, network.predict(dataset.getPattern(0)),
+                1e-12);
+    }
+}
@@ -0,0 +1,107 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class PredictionCacheTest {
+
+    private MultilayerPerceptron network;
+    private PredictionCache cache;
+
+    @Before
+    public void setUp() {
+        network = new MultilayerPerceptronBuilder().widths(4, 5, 2).seed(1L)
+                .build();
+        cache = new PredictionCache(8, 2);
+        network.setPredictionCache(cache);
+    }
+
+    @Test
+    public void testHitsByValueNotByIdentity() {
+        double[] first = network.predict(new double[]{5.1, 3.5, 1.4, 0.2});
+        double[] second = network.predict(new double[]{5.1, 3.5, 1.4, 0.2});
+        assertArrayEquals(first, second, 0.0);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testReturnsCopies() {
+        double[] pattern = {5.1, 3.5, 1.4, 0.2};
+        double[] expected = network.predict(pattern).clone();
+        network.predict(pattern)[0] = -1.0;
+        pattern[0] = 7.0;
+        assertArrayEquals(expected,
+                network.predict(new double[]{5.1, 3.5, 1.4, 0.2}), 0.0);
+    }
+
+    @Test
+    public void testInvalidatedWhenWeightsChange() {
+        double[] pattern = {5.1, 3.5, 1.4, 0.2};
+        double[] before = network.predict(pattern);
+        OutputNeuron output = network.outputs[0];
+        output.setWeight(0, output.getWeight(0) + 1.0);
+        double[] after = network.predict(pattern);
+        assertTrue(before[0] != after[0]);
+        assertArrayEquals(network.forward(pattern), after, 0.0);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testInvalidatedByTraining() throws Exception {
+        double[] pattern = {5.1, 3.5, 1.4, 0.2};
+        network.predict(pattern);
+        network.setMaxEpochs(1);
+        try {
+            network.train(new Dataset(new double[][]{pattern},
+                    new double[][]{{1.0, 0.0}}), 0.0);
+        } catch (UnsolvableProblemException upe) {
+            // una sola época no alcanza un error de 0
+        }
+        assertArrayEquals(network.forward(pattern), network.predict(pattern),
+                0.0);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedSize() {
+        for (int i = 0; i < 100; i++) {
+            network.predict(new double[]{i, 0.0, 0.0, 0.0});
+        }
+        assertTrue(cache.size() <= 8);
+        assertEquals(100 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBatchUsesCache() {
+        double[][] patterns = {{1.0, 2.0, 3.0, 4.0}, {1.0, 2.0, 3.0, 4.0}};
+        network.predict(patterns[0]);
+        double[][] predictions = network.predict(patterns);
+        assertArrayEquals(predictions[0], predictions[1], 0.0);
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBelongsToOneNetwork() {
+        MultilayerPerceptron other = new MultilayerPerceptronBuilder()
+                .widths(4, 5, 2).seed(1L).build();
+        other.setPredictionCache(cache);
+    }
+
+    @Test
+    public void testSameNetworkCanSetItAgain() {
+        network.setPredictionCache(null);
+        network.setPredictionCache(cache);
+        network.predict(new double[]{1.0, 2.0, 3.0, 4.0});
+        assertEquals(1, cache.getMissCount());
+    }
+}
@@ -0,0 +1,178 @@
+package multilayerperceptron;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author daniel
+ */
+public class PredictionServerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private MultilayerPerceptron network;
+    private PredictionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        network = new MultilayerPerceptronBuilder().widths(4, 5, 2).seed(1L)
+                .build();
+        server = new PredictionServer(network, 0, 8, 5);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testPredictRoundTrip() throws IOException {
+        Response response = request("POST", "/predict", "5.1, 3.5 1.4,0.2\n");
+        assertEquals(200, response.status);
+        double[] served = PredictionServer.parse(response.body);
+        assertArrayEquals(network.predict(new double[]{5.1, 3.5, 1.4, 0.2}),
+                served, 0.0);
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        request("POST", "/predict", "1,2,3,4");
+        request("POST", "/predict", "4,3,2,1");
+        Response response = request("GET", "/metrics", null);
+        assertEquals(200, response.status);
+        assertTrue(response.body.contains("requests 2\n"));
+        assertTrue(response.body.contains("latency_p99_ms "));
+        assertEquals(2, server.getMetrics().getRequestCount());
+    }
+
+    @Test
+    public void testBadInput() throws IOException {
+        assertEquals(400, request("POST", "/predict", "a,b,c,d").status);
+        assertEquals(400, request("POST", "/predict", "1,2").status);
+        assertEquals(400, request("POST", "/predict", "").status);
+        assertEquals(0, server.getMetrics().getRequestCount());
+    }
+
+    @Test
+    public void testBodyTooLarge() throws IOException {
+        StringBuilder body = new StringBuilder("1,2,3,4");
+        while (body.length() <= PredictionServer.BYTES_PER_VALUE * 5) {
+            body.append(' ');
+        }
+        assertEquals(413, request("POST", "/predict", body.toString()).status);
+        assertEquals(200, request("POST", "/predict", "1,2,3,4").status);
+    }
+
+    @Test
+    public void testHandlerThreadsAreBounded() throws Exception {
+        // pueden quedar hilos de servidores de otras pruebas
+        int before = handlerThreads();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger ok = new AtomicInteger();
+        Thread[] clients = new Thread[64];
+        for (int i = 0; i < clients.length; i++) {
+            final int id = i;
+            clients[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (request("POST", "/predict", id + ",1,2,3")
+                                .status == 200) {
+                            ok.incrementAndGet();
+                        }
+                    } catch (InterruptedException | IOException e) {
+                        // se cuenta como petición fallida
+                    }
+                }
+            });
+            clients[i].start();
+        }
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        assertEquals(clients.length, ok.get());
+        assertTrue(handlerThreads() - before <= 2 * 8);
+    }
+
+    private static int handlerThreads() {
+        int rtrn = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("prediction-server".equals(thread.getName())) {
+                rtrn++;
+            }
+        }
+        return rtrn;
+    }
+
+    @Test
+    public void testOnlyPost() throws IOException {
+        assertEquals(405, request("GET", "/predict", null).status);
+    }
+
+    private Response request(String method, String path, String body)
+            throws IOException {
+        URL url = new URL("http", "127.0.0.1", server.getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url
+                .openConnection();
+        try {
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(body.getBytes(UTF8));
+                } finally {
+                    out.close();
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream()
+                    : connection.getErrorStream();
+            return new Response(status, in == null ? "" : read(in));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int read;
+        try {
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray(), UTF8);
+    }
+
+    private static class Response {
+
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}